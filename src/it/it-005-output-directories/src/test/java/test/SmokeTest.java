@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test;
+
+import org.junit.*;
+
+import java.lang.Exception;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+public class SmokeTest {
+
+    @Test
+    public void smokes() throws Exception {
+        assertThat(SmokeTest.class.getResource("/password.properties"), is(notNullValue()));
+        assertThat(SmokeTest.class.getResource("/secret/password.properties"), is(notNullValue()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test;
+
+import org.junit.*;
+
+import java.io.InputStream;
+import java.lang.Exception;
+import java.util.Scanner;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+public class SmokeTest {
+
+    @Test
+    public void smokes() throws Exception {
+        assertThat(SmokeTest.class.getResource("/password.properties"), is(notNullValue()));
+        assertThat(SmokeTest.class.getResource("/unused.properties"), is(nullValue()));
+        assertThat(read("/password.properties"), containsString("password=secret\n"));
+        String index = read("/META-INF/rfmm/resources.idx");
+        // only the copied file is hashed, a secret that is left out is listed without a digest
+        assertTrue(index, index.matches("(?s).*\n[0-9a-f]{40} \\d+ password\\.properties\n.*"));
+        assertTrue(index, index.matches("(?s).*\n- \\d+ unused\\.properties\n.*"));
+        assertThat(read("/META-INF/rfmm/materialized.lst"), is("password.properties\n"));
+    }
+
+    private static String read(String name) throws Exception {
+        InputStream stream = SmokeTest.class.getResourceAsStream(name);
+        assertThat(stream, is(notNullValue()));
+        try {
+            return new Scanner(stream, "UTF-8").useDelimiter("\\A").next();
+        } finally {
+            stream.close();
+        }
+    }
+}
\ No newline at end of file
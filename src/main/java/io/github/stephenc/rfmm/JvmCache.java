@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.stephenc.rfmm;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache that lives as long as the plugin class loader, which under the Maven daemon (mvnd) or an embedded Maven
+ * spans many builds. Each entry records the modification time and size of the files it was derived from and is only
+ * returned while those are unchanged. The cache is bounded by both entry count and estimated memory, evicting the
+ * least recently used entries first.
+ *
+ * @author Stephen Connolly
+ */
+final class JvmCache {
+
+    /**
+     * File systems with coarse timestamps can report the same modification time for a file modified twice in quick
+     * succession, so anything derived from files modified this recently is not cached.
+     */
+    private static final long TIMESTAMP_RESOLUTION = 2000L;
+
+    /**
+     * The approximate overhead of each entry in bytes.
+     */
+    private static final long ENTRY_OVERHEAD = 128L;
+
+    private static final JvmCache INSTANCE = new JvmCache();
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private int maxEntries = 1024;
+
+    private long maxBytes = 16L * 1024 * 1024;
+
+    private boolean configured;
+
+    private long bytes;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private JvmCache() {
+    }
+
+    static JvmCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the modification time and size of the files that a value is about to be derived from. This should be
+     * taken <em>before</em> reading the files so that a concurrent modification invalidates the entry.
+     *
+     * @param files the files.
+     * @return the stamp.
+     */
+    static Stamp stamp(File... files) {
+        return new Stamp(files);
+    }
+
+    /**
+     * Estimates the memory used by a string.
+     *
+     * @param value the string, may be {@code null}.
+     * @return the estimated number of bytes.
+     */
+    static long weigh(String value) {
+        return value == null ? 0L : 40L + 2L * value.length();
+    }
+
+    /**
+     * Sets the limits of the cache. The cache is shared by every execution in the JVM, so only the first call takes
+     * effect and later calls, which in a parallel build could come from any module in any order, cannot resize it.
+     *
+     * @param maxEntries the maximum number of entries.
+     * @param maxBytes   the approximate maximum memory in bytes.
+     * @return {@code true} if the cache has these limits, {@code false} if it was already configured differently.
+     */
+    synchronized boolean configure(int maxEntries, long maxBytes) {
+        if (!configured) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            configured = true;
+            evict();
+        }
+        return this.maxEntries == maxEntries && this.maxBytes == maxBytes;
+    }
+
+    synchronized String getLimits() {
+        return "maxEntries=" + maxEntries + ", maxBytes=" + maxBytes;
+    }
+
+    /**
+     * Returns a cached value if the files it was derived from are unchanged.
+     *
+     * @param key the key.
+     * @return the value or {@code null} on a miss.
+     */
+    synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.stamp.isCurrent()) {
+            hits++;
+            return entry.value;
+        }
+        if (entry != null) {
+            entries.remove(key);
+            bytes -= entry.weight;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Caches a value.
+     *
+     * @param key    the key.
+     * @param value  the value, which must not be modified once cached.
+     * @param weight the estimated memory used by the value in bytes.
+     * @param stamp  the stamp of the files that the value was derived from.
+     */
+    synchronized void put(String key, Object value, long weight, Stamp stamp) {
+        if (stamp.isRacy()) {
+            return;
+        }
+        Entry entry = new Entry(value, weight + ENTRY_OVERHEAD + weigh(key) + stamp.getWeight(), stamp);
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.weight;
+        }
+        bytes += entry.weight;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && (entries.size() > maxEntries || bytes > maxBytes)) {
+            bytes -= iterator.next().getValue().weight;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    synchronized String getStatistics() {
+        return hits + " hits, " + misses + " misses, " + evictions + " evictions, " + entries.size() + " entries ("
+                + (bytes / 1024) + " KB)";
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long weight;
+        private final Stamp stamp;
+
+        private Entry(Object value, long weight, Stamp stamp) {
+            this.value = value;
+            this.weight = weight;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * The modification time and size of a set of files at a point in time.
+     */
+    static final class Stamp {
+        private final long created;
+        private final File[] files;
+        private final long[] lastModified;
+        private final long[] length;
+
+        private Stamp(File[] files) {
+            this.created = System.currentTimeMillis();
+            this.files = files.clone();
+            this.lastModified = new long[files.length];
+            this.length = new long[files.length];
+            for (int i = 0; i < files.length; i++) {
+                lastModified[i] = files[i].lastModified();
+                length[i] = files[i].length();
+            }
+        }
+
+        boolean isCurrent() {
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].lastModified() != lastModified[i] || files[i].length() != length[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long getWeight() {
+            long weight = 0L;
+            for (File file : files) {
+                weight += weigh(file.getPath()) + 40L;
+            }
+            return weight;
+        }
+
+        boolean isRacy() {
+            for (long modified : lastModified) {
+                if (modified > created - TIMESTAMP_RESOLUTION) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
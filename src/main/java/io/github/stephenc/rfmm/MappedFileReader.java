@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.stephenc.rfmm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A {@link Reader} that decodes a file through a sliding memory-mapped region, so that neither the file contents nor
+ * the decoded characters ever need to be held on the heap in full.
+ *
+ * @author Stephen Connolly
+ */
+final class MappedFileReader extends Reader {
+
+    /**
+     * The size of each mapped region of the file.
+     */
+    private static final long REGION_SIZE = 8L * 1024 * 1024;
+
+    private final FileInputStream stream;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final CharsetDecoder decoder;
+
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+
+    /**
+     * The offset within the file of the currently mapped region.
+     */
+    private long offset;
+
+    private ByteBuffer bytes;
+
+    private boolean done;
+
+    MappedFileReader(File file, Charset charset) throws IOException {
+        stream = new FileInputStream(file);
+        channel = stream.getChannel();
+        size = channel.size();
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars.flip();
+    }
+
+    public int read() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get();
+    }
+
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        int count = Math.min(len, chars.remaining());
+        chars.get(cbuf, off, count);
+        return count;
+    }
+
+    private boolean fill() throws IOException {
+        chars.clear();
+        try {
+            while (chars.position() == 0 && !done) {
+                if (bytes == null) {
+                    map(0L);
+                }
+                boolean endOfInput = offset + bytes.limit() >= size;
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (result.isUnderflow()) {
+                    if (!endOfInput) {
+                        // slide the region forward, starting with any bytes of a partially decoded character
+                        map(offset + bytes.position());
+                    } else if (decoder.flush(chars).isUnderflow()) {
+                        done = true;
+                    }
+                }
+            }
+        } finally {
+            chars.flip();
+        }
+        return chars.hasRemaining();
+    }
+
+    private void map(long position) throws IOException {
+        offset = position;
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION_SIZE, size - position));
+    }
+
+    public void close() throws IOException {
+        bytes = null;
+        try {
+            channel.close();
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.stephenc.rfmm;
+
+import java.io.File;
+
+/**
+ * An output directory that the resources are copied into.
+ *
+ * @author Stephen Connolly
+ */
+public class OutputDirectory {
+
+    /**
+     * The directory.
+     */
+    private File directory;
+
+    /**
+     * The optional path within the directory that the resources are copied to.
+     */
+    private String targetPath;
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    public String getTargetPath() {
+        return targetPath;
+    }
+
+    public void setTargetPath(String targetPath) {
+        this.targetPath = targetPath;
+    }
+
+    /**
+     * Returns the directory that the resources are copied to, i.e. the directory with the target path applied.
+     *
+     * @return the directory that the resources are copied to.
+     */
+    public File getTargetDirectory() {
+        String path = ResourceUtils.normalizeTargetPath(targetPath);
+        return path.length() == 0 ? directory : new File(directory, path);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.stephenc.rfmm;
+
+import org.apache.maven.model.Resource;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An index of the resources that are available to be copied, keyed by their path within the output directory.
+ * <p/>
+ * The index is written to {@value #INDEX_PATH} with one {@code sha1 size path} line per resource. The index ships
+ * alongside the resources, so it only describes what is shipped anyway: the SHA-1 and size of each copied file as
+ * written to the output, while a resource that is not copied gets a {@code -} in place of the SHA-1 and the size of
+ * its source file. Thus the index exposes the path and size of every resource but no digest of a secret that was
+ * left out. The paths actually copied are written to {@value #MANIFEST_PATH}, one per line, so that code can
+ * discover them with nothing more than {@link ClassLoader#getResourceAsStream(String)}.
+ *
+ * @author Stephen Connolly
+ */
+final class ResourceIndex {
+
+    static final String INDEX_PATH = "META-INF/rfmm/resources.idx";
+
+    static final String MANIFEST_PATH = "META-INF/rfmm/materialized.lst";
+
+    /**
+     * Sorted so that the files written are identical when nothing has changed.
+     */
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+    /**
+     * Adds a resource file. When an earlier resource already provides the path, the later file only takes its place
+     * if it would be written over the earlier one when copying, which the caller decides.
+     *
+     * @param path     the path within the output directory, using {@code /} as the separator.
+     * @param resource the resource the file belongs to.
+     * @param name     the path of the file relative to the resource directory.
+     * @param size     the size of the source file.
+     * @param replace  {@code true} if the file replaces any earlier file with the same path.
+     */
+    void add(String path, Resource resource, String name, long size, boolean replace) {
+        if (replace || !entries.containsKey(path)) {
+            entries.put(path, new Entry(resource, name, size));
+        }
+    }
+
+    /**
+     * Records the file that was written for a path.
+     *
+     * @param path the path within the output directory, using {@code /} as the separator.
+     * @param size the size of the file as written.
+     * @param sha1 the SHA-1 of the file as written.
+     */
+    void setOutput(String path, long size, String sha1) {
+        Entry entry = entries.get(path);
+        entry.size = size;
+        entry.sha1 = sha1;
+    }
+
+    /**
+     * Selects the paths matching any of the patterns.
+     *
+     * @param patterns  Ant-style patterns matched against the path within the output directory.
+     * @param unmatched the collection to add each pattern without wildcards that is not an indexed path to.
+     * @return the matching paths.
+     */
+    Set<String> select(Collection<String> patterns, Collection<String> unmatched) {
+        Set<String> result = new HashSet<String>();
+        List<String> wildcards = new ArrayList<String>();
+        for (String pattern : patterns) {
+            String path = ResourceUtils.normalizeTargetPath(pattern);
+            if (path.indexOf('*') == -1 && path.indexOf('?') == -1) {
+                // the common case of a plain list of paths needs no matching at all
+                if (entries.containsKey(path)) {
+                    result.add(path);
+                } else {
+                    unmatched.add(pattern);
+                }
+            } else {
+                wildcards.add(path.replace('/', File.separatorChar));
+            }
+        }
+        if (!wildcards.isEmpty()) {
+            for (String path : entries.keySet()) {
+                String platformPath = path.replace('/', File.separatorChar);
+                for (String pattern : wildcards) {
+                    if (SelectorUtils.matchPath(pattern, platformPath)) {
+                        result.add(path);
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Restricts resources to the selected paths. Each path is only copied from the resource file that the index
+     * holds for it, so the result is the same as copying everything and then discarding what was not selected.
+     *
+     * @param resources the resources.
+     * @param selected  the selected paths.
+     * @return resources that will copy only the selected paths.
+     */
+    List<Resource> restrict(List<Resource> resources, Set<String> selected) {
+        Map<Resource, List<String>> includes = new IdentityHashMap<Resource, List<String>>();
+        for (String path : selected) {
+            Entry entry = entries.get(path);
+            List<String> names = includes.get(entry.resource);
+            if (names == null) {
+                names = new ArrayList<String>();
+                includes.put(entry.resource, names);
+            }
+            names.add(entry.name);
+        }
+        List<Resource> result = new ArrayList<Resource>(includes.size());
+        for (Resource resource : resources) {
+            List<String> names = includes.get(resource);
+            if (names != null) {
+                result.add(ResourceUtils.copyOf(resource, names));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the index and the manifest of materialized paths.
+     *
+     * @param outputDirectory the output directory.
+     * @param materialized    the paths that were copied.
+     * @throws IOException if the files could not be written.
+     */
+    void write(File outputDirectory, Collection<String> materialized) throws IOException {
+        Writer writer = open(new File(outputDirectory, INDEX_PATH));
+        try {
+            writer.write("# sha1 size path\n");
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writer.write(entry.getValue().sha1 == null ? "-" : entry.getValue().sha1);
+                writer.write(' ');
+                writer.write(Long.toString(entry.getValue().size));
+                writer.write(' ');
+                writer.write(entry.getKey());
+                writer.write('\n');
+            }
+            writer.close();
+            writer = null;
+        } finally {
+            IOUtil.close(writer);
+        }
+        writer = open(new File(outputDirectory, MANIFEST_PATH));
+        try {
+            for (String path : new TreeSet<String>(materialized)) {
+                writer.write(path);
+                writer.write('\n');
+            }
+            writer.close();
+            writer = null;
+        } finally {
+            IOUtil.close(writer);
+        }
+    }
+
+    Set<String> getPaths() {
+        return entries.keySet();
+    }
+
+    private static Writer open(File file) throws IOException {
+        ResourceUtils.mkdirs(file.getParentFile());
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+
+    private static final class Entry {
+        private final Resource resource;
+        private final String name;
+        private long size;
+        private String sha1;
+
+        private Entry(Resource resource, String name, long size) {
+            this.resource = resource;
+            this.name = name;
+            this.size = size;
+        }
+    }
+}
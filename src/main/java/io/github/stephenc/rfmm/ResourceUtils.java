@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.stephenc.rfmm;
+
+import org.apache.maven.model.Resource;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Helpers for resources and the paths that they are copied to.
+ *
+ * @author Stephen Connolly
+ */
+final class ResourceUtils {
+
+    private ResourceUtils() {
+        // utility class
+    }
+
+    /**
+     * Copies a resource, replacing its includes with an explicit list of files.
+     *
+     * @param resource the resource.
+     * @param includes the paths of the files relative to the resource directory.
+     * @return the copy, without any excludes.
+     */
+    static Resource copyOf(Resource resource, List<String> includes) {
+        Resource copy = new Resource();
+        copy.setDirectory(resource.getDirectory());
+        copy.setTargetPath(resource.getTargetPath());
+        copy.setFiltering(resource.isFiltering());
+        copy.setIncludes(includes);
+        return copy;
+    }
+
+    /**
+     * Returns the path within the output directory that a resource file is copied to.
+     *
+     * @param targetPath the normalized target path of the resource.
+     * @param name       the path of the file relative to the resource directory.
+     * @return the path within the output directory, using {@code /} as the separator.
+     */
+    static String getOutputPath(String targetPath, String name) {
+        String path = name.replace(File.separatorChar, '/');
+        return targetPath.length() == 0 ? path : targetPath + "/" + path;
+    }
+
+    /**
+     * Normalizes a resource target path to use {@code /} as the separator without leading or trailing separators
+     * and with any {@code .} and {@code ..} segments resolved, so that it matches the path that a file ends up at.
+     *
+     * @param targetPath the target path, may be {@code null}.
+     * @return the normalized target path, empty if the resource is copied to the root of the output directory.
+     */
+    static String normalizeTargetPath(String targetPath) {
+        if (StringUtils.isEmpty(targetPath)) {
+            return "";
+        }
+        LinkedList<String> segments = new LinkedList<String>();
+        for (String segment : targetPath.replace('\\', '/').split("/")) {
+            if (segment.length() == 0 || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..") && !segments.isEmpty() && !segments.getLast().equals("..")) {
+                segments.removeLast();
+            } else {
+                segments.add(segment);
+            }
+        }
+        StringBuilder result = new StringBuilder(targetPath.length());
+        for (String segment : segments) {
+            if (result.length() > 0) {
+                result.append('/');
+            }
+            result.append(segment);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Checks that a resource target path stays within the output directory, i.e. that it is neither absolute nor
+     * climbs out with {@code ..}.
+     *
+     * @param targetPath the target path, may be {@code null}.
+     * @return {@code true} if the target path is within the output directory.
+     */
+    static boolean isContained(String targetPath) {
+        if (StringUtils.isEmpty(targetPath)) {
+            return true;
+        }
+        if (targetPath.startsWith("/") || targetPath.startsWith("\\") || new File(targetPath).isAbsolute()
+                || (targetPath.length() > 1 && targetPath.charAt(1) == ':')) {
+            return false;
+        }
+        String normalized = normalizeTargetPath(targetPath);
+        return !normalized.equals("..") && !normalized.startsWith("../");
+    }
+
+    /**
+     * Creates a directory (and any parents) tolerating another thread having created it first.
+     *
+     * @param directory the directory.
+     * @throws IOException if the directory does not exist and could not be created.
+     */
+    static void mkdirs(File directory) throws IOException {
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+    }
+}
@@ -36,20 +36,30 @@ import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 import org.codehaus.plexus.context.Context;
 import org.codehaus.plexus.context.ContextException;
+import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -138,7 +148,21 @@ public class ResourcesMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
     private File outputDirectory;
     /**
-     * The list of resources we want to transfer.
+     * The build directory of the project, that the resources are staged in before being copied to the output
+     * directories.
+     */
+    @Parameter(defaultValue = "${project.build.directory}", readonly = true)
+    private File buildDirectory;
+    /**
+     * The output directories into which to copy the resources, each with an optional {@code targetPath}. When
+     * specified, these replace {@link #outputDirectory}. Each resource is read and filtered once and the result
+     * written to every output directory.
+     */
+    @Parameter
+    private List<OutputDirectory> outputDirectories;
+    /**
+     * The list of resources we want to transfer. The {@code targetPath} of a resource must be relative and stay
+     * within the output directory.
      */
     @Parameter()
     private List<Resource> resources;
@@ -169,14 +193,62 @@ public class ResourcesMojo extends AbstractMojo {
     /**
      */
     private PlexusContainer plexusContainer;
-    /**
-     */
-    private List<MavenResourcesFiltering> mavenFilteringComponents = new ArrayList<MavenResourcesFiltering>();
     /**
      * stop searching endToken at the end of line
      */
     @Parameter(property = "maven.resources.supportMultiLineFiltering", defaultValue = "false")
     private boolean supportMultiLineFiltering;
+    /**
+     * Filtered files of at least this many bytes are read through a memory-mapped window and filtered with a fixed
+     * lookahead (see {@link #streamingFilterLookahead}) so that memory use does not depend on the size of the file.
+     * A negative value disables streaming.
+     */
+    @Parameter(property = "rfmm.streamingFilterThreshold", defaultValue = "-1")
+    private long streamingFilterThreshold;
+    /**
+     * The maximum number of characters to search for the end token of an expression when streaming. An expression
+     * that is not closed within this window is copied through verbatim and reported.
+     */
+    @Parameter(property = "rfmm.streamingFilterLookahead", defaultValue = "8192")
+    private int streamingFilterLookahead;
+    /**
+     * Keep the results of path canonicalization, POM coordinate parsing, filter file loading and directory scanning
+     * for as long as the plugin stays loaded, which with the Maven daemon (mvnd) or an embedded Maven spans builds.
+     * Cached results are discarded as soon as the files they were derived from change on disk.
+     * <p>
+     * The cached scan supplies the explicit list of files to copy, so maven-filtering only walks the directories
+     * that hold them. maven-filtering still loads the filter files itself though, so the cached filter properties
+     * only save work for the files filtered by streaming.
+     * </p>
+     */
+    @Parameter(property = "rfmm.jvmCache", defaultValue = "false")
+    private boolean useJvmCache;
+    /**
+     * The maximum number of entries to keep in the JVM cache. The cache is shared by the whole JVM, so the limits of
+     * the first execution to use it apply and those of any later execution are ignored.
+     */
+    @Parameter(property = "rfmm.jvmCache.maxEntries", defaultValue = "1024")
+    private int jvmCacheMaxEntries;
+    /**
+     * The approximate maximum memory in bytes to use for the JVM cache. As with {@link #jvmCacheMaxEntries}, only
+     * the limits of the first execution to use the cache apply.
+     */
+    @Parameter(property = "rfmm.jvmCache.maxBytes", defaultValue = "16777216")
+    private long jvmCacheMaxBytes;
+    /**
+     * Write an index of every available resource to {@code META-INF/rfmm/resources.idx} and the list of the
+     * resources actually copied to {@code META-INF/rfmm/materialized.lst} in the output directory. The index lists the
+     * path and size of every resource, but the SHA-1 only of the copied files as written, so that nothing is revealed
+     * about the content of a resource that is not copied.
+     */
+    @Parameter(property = "rfmm.index", defaultValue = "false")
+    private boolean generateIndex;
+    /**
+     * Ant-style patterns of the paths within the output directory to copy. When specified, only the resources
+     * matching one of the patterns are copied rather than the whole tree.
+     */
+    @Parameter
+    private List<String> materialize;
 
     /**
      * Returns the path of one File relative to another.
@@ -232,19 +304,30 @@ public class ResourcesMojo extends AbstractMojo {
     }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        if (resources == null || resources.isEmpty()) {
-            resources = new ArrayList<Resource>(1);
+        // the mojo fields are configuration only, everything this execution derives from them stays local
+        final List<Resource> resources;
+        if (this.resources == null || this.resources.isEmpty()) {
             final Resource resource = new Resource();
             resource.setDirectory("src/secret/resources");
             resource.setFiltering(false);
-            resources.add(resource);
+            resources = Collections.singletonList(resource);
+        } else {
+            resources = Collections.unmodifiableList(new ArrayList<Resource>(this.resources));
+        }
+        for (Resource resource : resources) {
+            // anything outside the output directory would bypass staging and so the locking and atomic replacement
+            if (!ResourceUtils.isContained(resource.getTargetPath())) {
+                throw new MojoExecutionException("The targetPath " + resource.getTargetPath() + " of resource "
+                        + resource.getDirectory() + " must be a relative path within the output directory");
+            }
         }
-        if (!outputDirectory.isDirectory()) {
-            outputDirectory.mkdirs();
+        if (useJvmCache && !JvmCache.getInstance().configure(jvmCacheMaxEntries, jvmCacheMaxBytes)) {
+            getLog().debug("Ignoring the JVM cache limits of this execution as the cache is already configured with "
+                    + JvmCache.getInstance().getLimits());
         }
         File sessionExecutionRoot;
         try {
-            sessionExecutionRoot = new File(session.getExecutionRootDirectory()).getCanonicalFile();
+            sessionExecutionRoot = getCanonicalFile(new File(session.getExecutionRootDirectory()));
         } catch (IOException e) {
             sessionExecutionRoot = new File(session.getExecutionRootDirectory());
         }
@@ -254,7 +337,7 @@ public class ResourcesMojo extends AbstractMojo {
         getLog().debug("Project path relative to root: " + relativePath);
         File candidateExecutionRoot;
         try {
-            candidateExecutionRoot = new File(sessionExecutionRoot, offset).getCanonicalFile();
+            candidateExecutionRoot = getCanonicalFile(new File(sessionExecutionRoot, offset));
         } catch (IOException e) {
             candidateExecutionRoot = new File(sessionExecutionRoot, offset).getAbsoluteFile();
         }
@@ -284,7 +367,7 @@ public class ResourcesMojo extends AbstractMojo {
 
         try {
 
-            if (StringUtils.isEmpty(encoding) && isFilteringEnabled(getResources())) {
+            if (StringUtils.isEmpty(encoding) && isFilteringEnabled(resources)) {
                 getLog().warn("File encoding has not been set, using platform encoding " + ReaderFactory.FILE_ENCODING
                         + ", i.e. build is platform dependent!");
             }
@@ -299,55 +382,575 @@ public class ResourcesMojo extends AbstractMojo {
                 throw new MojoExecutionException("Could not clone project");
             }
 
-            MavenResourcesExecution mavenResourcesExecution =
-                    new MavenResourcesExecution(getResources(), getOutputDirectory(), project, encoding, filters,
-                            Collections.<String>emptyList(), session);
+            final List<File> targetDirectories = getTargetDirectories();
+            final StagedOutput staged;
+            try {
+                staged = StagedOutput.create(buildDirectory);
+            } catch (IOException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+            try {
+                List<Resource> materialized = resources;
+                ResourceIndex index = null;
+                Collection<String> paths = null;
+                if (generateIndex || (materialize != null && !materialize.isEmpty())) {
+                    index = buildIndex(resources, project.getBasedir());
+                    paths = index.getPaths();
+                }
+                if (materialize != null && !materialize.isEmpty()) {
+                    List<String> unmatched = new ArrayList<String>();
+                    Set<String> selected = index.select(materialize, unmatched);
+                    for (String path : unmatched) {
+                        getLog().warn("Cannot materialize " + path + " as no resource provides it");
+                    }
+                    getLog().debug("Materializing " + selected.size() + " of " + paths.size() + " resources");
+                    materialized = index.restrict(resources, selected);
+                    paths = selected;
+                }
+                Map<String, File> unfilteredSources = new HashMap<String, File>();
+                List<Resource> planned =
+                        planCopy(materialized, project.getBasedir(), targetDirectories, unfilteredSources);
+                filterResources(planned, staged.getDirectory(), project, filters);
+                if (generateIndex) {
+                    File committed = targetDirectories.get(targetDirectories.size() - 1);
+                    for (String path : paths) {
+                        File output = new File(staged.getDirectory(), path);
+                        if (!output.isFile()) {
+                            // up to date so never staged
+                            output = new File(committed, path);
+                        }
+                        index.setOutput(path, output.length(), getSha1(output));
+                    }
+                    index.write(staged.getDirectory(), paths);
+                }
+                int count = staged.commit(targetDirectories, unfilteredSources, getLog());
+                getLog().debug("Committed " + count + " files to " + targetDirectories);
+            } catch (IOException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            } finally {
+                staged.dispose(getLog());
+            }
+        } catch (MavenFilteringException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        if (useJvmCache) {
+            getLog().debug("JVM cache: " + JvmCache.getInstance().getStatistics());
+        }
+    }
 
-            mavenResourcesExecution.setEscapeWindowsPaths(escapeWindowsPaths);
+    /**
+     * Returns the JVM cache if enabled.
+     *
+     * @return the JVM cache or {@code null} if disabled.
+     */
+    private JvmCache getCache() {
+        return useJvmCache ? JvmCache.getInstance() : null;
+    }
 
-            // never include project build filters in this call, since we've already accounted for the POM build filters
-            // above, in getCombinedFiltersList().
-            mavenResourcesExecution.setInjectProjectBuildFilters(false);
+    private File getCanonicalFile(File file) throws IOException {
+        JvmCache cache = getCache();
+        if (cache == null) {
+            return file.getCanonicalFile();
+        }
+        String key = "canonical:" + file.getAbsolutePath();
+        File result = (File) cache.get(key);
+        if (result == null) {
+            JvmCache.Stamp stamp = JvmCache.stamp(file);
+            result = file.getCanonicalFile();
+            cache.put(key, result, JvmCache.weigh(result.getPath()), stamp);
+        }
+        return result;
+    }
 
-            mavenResourcesExecution.setEscapeString(escapeString);
-            mavenResourcesExecution.setOverwrite(overwrite);
-            mavenResourcesExecution.setIncludeEmptyDirs(includeEmptyDirs);
-            mavenResourcesExecution.setSupportMultiLineFiltering(supportMultiLineFiltering);
+    /**
+     * Returns the directories that the resources are copied to, with any target path applied.
+     *
+     * @return the directories that the resources are copied to.
+     * @throws MojoExecutionException if an output directory has not been specified.
+     */
+    private List<File> getTargetDirectories() throws MojoExecutionException {
+        if (outputDirectories == null || outputDirectories.isEmpty()) {
+            return Collections.singletonList(outputDirectory);
+        }
+        List<File> result = new ArrayList<File>(outputDirectories.size());
+        for (OutputDirectory outputDirectory : outputDirectories) {
+            if (outputDirectory.getDirectory() == null) {
+                throw new MojoExecutionException("Each of the outputDirectories must specify a directory");
+            }
+            File targetDirectory = outputDirectory.getTargetDirectory();
+            if (!result.contains(targetDirectory)) {
+                result.add(targetDirectory);
+            }
+        }
+        return result;
+    }
 
-            // if these are NOT set, just use the defaults, which are '${*}' and '@'.
-            if (delimiters != null && !delimiters.isEmpty()) {
-                LinkedHashSet<String> delims = new LinkedHashSet<String>();
-                if (useDefaultDelimiters) {
-                    delims.addAll(mavenResourcesExecution.getDelimiters());
+    /**
+     * Works out which files need to be copied before anything is read, giving each resource an explicit list of
+     * includes. Where several resources provide the same path only the file that copying would leave in place is
+     * included (see {@link #isReplacing}). Files copied without filtering are skipped when every target is already
+     * newer than the source, just as maven-filtering would. Filtered files are always included as their output
+     * depends on more than the source file, unchanged output is left untouched when committed instead.
+     *
+     * @param resources         the resources.
+     * @param baseDir           the directory that relative resource directories are resolved against.
+     * @param targetDirectories the directories that the resources will be committed to.
+     * @param unfilteredSources the map to add the source of each file copied without filtering to, keyed by the path
+     *                          within the output directory, so that the same check can be made when committing.
+     * @return the resources restricted to the files that need copying.
+     */
+    private List<Resource> planCopy(List<Resource> resources, File baseDir, List<File> targetDirectories,
+                                    Map<String, File> unfilteredSources) {
+        List<Scan> scans = new ArrayList<Scan>(resources.size());
+        Map<String, Resource> providers = new HashMap<String, Resource>();
+        for (Resource resource : resources) {
+            File directory = getResourceDirectory(resource, baseDir);
+            if (!directory.isDirectory()) {
+                getLog().debug("Skipping non-existent resource directory " + directory);
+                scans.add(null);
+                continue;
+            }
+            Scan scan = scan(directory, resource);
+            scans.add(scan);
+            String targetPath = ResourceUtils.normalizeTargetPath(resource.getTargetPath());
+            for (String name : scan.files) {
+                String path = ResourceUtils.getOutputPath(targetPath, name);
+                if (!providers.containsKey(path) || isReplacing(resource, name)) {
+                    providers.put(path, resource);
                 }
-
-                for (String delim : delimiters) {
-                    if (delim == null) {
-                        // FIXME: ${filter:*} could also trigger this condition. Need a better long-term solution.
-                        delims.add("${*}");
-                    } else {
-                        delims.add(delim);
+            }
+        }
+        List<Resource> result = new ArrayList<Resource>(resources.size());
+        for (int i = 0; i < resources.size(); i++) {
+            Resource resource = resources.get(i);
+            Scan scan = scans.get(i);
+            if (scan == null) {
+                continue;
+            }
+            File directory = getResourceDirectory(resource, baseDir);
+            String targetPath = ResourceUtils.normalizeTargetPath(resource.getTargetPath());
+            List<String> includes = new ArrayList<String>(scan.files.length);
+            for (String name : scan.files) {
+                String path = ResourceUtils.getOutputPath(targetPath, name);
+                if (providers.get(path) != resource) {
+                    continue;
+                }
+                if (!isFiltered(resource, name) && !overwrite) {
+                    File source = new File(directory, name);
+                    if (isUpToDate(source, path, targetDirectories)) {
+                        continue;
                     }
+                    unfilteredSources.put(path, source);
                 }
+                includes.add(name);
+            }
+            if (includeEmptyDirs) {
+                for (String name : scan.directories) {
+                    if (name.length() > 0) {
+                        includes.add(name);
+                    }
+                }
+            }
+            if (!includes.isEmpty()) {
+                result.add(ResourceUtils.copyOf(resource, includes));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines whether a file is filtered when copied.
+     *
+     * @param resource the resource the file belongs to.
+     * @param name     the path of the file relative to the resource directory.
+     * @return {@code true} if the file is filtered.
+     */
+    private boolean isFiltered(Resource resource, String name) {
+        return resource.isFiltering()
+                && mavenResourcesFiltering.filteredFileExtension(name, getNonFilteredFileExtensions());
+    }
+
+    /**
+     * Determines whether a file replaces a file with the same path from an earlier resource. maven-filtering always
+     * writes a filtered file, but only copies an unfiltered file over a file that it has just written when
+     * overwriting, as the file just written is newer than the source.
+     *
+     * @param resource the resource the file belongs to.
+     * @param name     the path of the file relative to the resource directory.
+     * @return {@code true} if the file replaces any earlier file with the same path.
+     */
+    private boolean isReplacing(Resource resource, String name) {
+        return overwrite || isFiltered(resource, name);
+    }
+
+    /**
+     * Returns the additional file extensions to not apply filtering to.
+     *
+     * @return the additional file extensions, never {@code null}.
+     */
+    private List<String> getNonFilteredFileExtensions() {
+        return nonFilteredFileExtensions == null ? Collections.<String>emptyList() : nonFilteredFileExtensions;
+    }
+
+    private static boolean isUpToDate(File source, String path, List<File> targetDirectories) {
+        for (File targetDirectory : targetDirectories) {
+            File target = new File(targetDirectory, path);
+            if (!target.isFile() || target.lastModified() < source.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-                mavenResourcesExecution.setDelimiters(delims);
+    /**
+     * Copies / filters the resources into a directory.
+     *
+     * @param resources       the resources.
+     * @param outputDirectory the directory to copy / filter into.
+     * @param project         the project to filter with.
+     * @param filters         the filter files.
+     * @throws MojoExecutionException if a user filter component could not be found.
+     * @throws MavenFilteringException if the resources could not be filtered.
+     */
+    private void filterResources(List<Resource> resources, File outputDirectory, MavenProject project,
+                                 List<String> filters)
+            throws MojoExecutionException, MavenFilteringException {
+        Map<File, File> streamed = new LinkedHashMap<File, File>();
+        if (streamingFilterThreshold >= 0) {
+            resources = excludeStreamed(resources, project.getBasedir(), outputDirectory, streamed);
+        }
+
+        MavenResourcesExecution mavenResourcesExecution =
+                new MavenResourcesExecution(resources, outputDirectory, project, encoding, filters,
+                        Collections.<String>emptyList(), session);
+
+        mavenResourcesExecution.setEscapeWindowsPaths(escapeWindowsPaths);
+
+        // never include project build filters in this call, since we've already accounted for the POM build filters
+        // above, in getCombinedFiltersList().
+        mavenResourcesExecution.setInjectProjectBuildFilters(false);
+
+        mavenResourcesExecution.setEscapeString(escapeString);
+        mavenResourcesExecution.setOverwrite(overwrite);
+        mavenResourcesExecution.setIncludeEmptyDirs(includeEmptyDirs);
+        mavenResourcesExecution.setSupportMultiLineFiltering(supportMultiLineFiltering);
+
+        // if these are NOT set, just use the defaults, which are '${*}' and '@'.
+        if (delimiters != null && !delimiters.isEmpty()) {
+            LinkedHashSet<String> delims = new LinkedHashSet<String>();
+            if (useDefaultDelimiters) {
+                delims.addAll(mavenResourcesExecution.getDelimiters());
             }
 
-            if (nonFilteredFileExtensions != null) {
-                mavenResourcesExecution.setNonFilteredFileExtensions(nonFilteredFileExtensions);
+            for (String delim : delimiters) {
+                if (delim == null) {
+                    // FIXME: ${filter:*} could also trigger this condition. Need a better long-term solution.
+                    delims.add("${*}");
+                } else {
+                    delims.add(delim);
+                }
             }
-            mavenResourcesFiltering.filterResources(mavenResourcesExecution);
 
-            executeUserFilterComponents(mavenResourcesExecution);
-        } catch (MavenFilteringException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
+            mavenResourcesExecution.setDelimiters(delims);
         }
+
+        if (nonFilteredFileExtensions != null) {
+            mavenResourcesExecution.setNonFilteredFileExtensions(nonFilteredFileExtensions);
+        }
+        mavenResourcesFiltering.filterResources(mavenResourcesExecution);
+
+        if (!streamed.isEmpty()) {
+            Collection<String> delims = mavenResourcesExecution.getDelimiters();
+            StreamingFilter filter = new StreamingFilter(getFilterProperties(project, filters), project, session,
+                    delims, escapeString, supportMultiLineFiltering, escapeWindowsPaths, streamingFilterLookahead,
+                    getLog());
+            for (Map.Entry<File, File> entry : streamed.entrySet()) {
+                getLog().debug("Streaming " + entry.getKey() + " to " + entry.getValue());
+                try {
+                    filter.filter(entry.getKey(), entry.getValue(), encoding);
+                } catch (IOException e) {
+                    throw new MavenFilteringException("Could not filter " + entry.getKey() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        executeUserFilterComponents(mavenResourcesExecution);
+    }
+
+    /**
+     * Finds the filtered files that are large enough to be streamed.
+     *
+     * @param resources       the resources, as planned by {@link #planCopy}.
+     * @param baseDir         the directory that relative resource directories are resolved against.
+     * @param outputDirectory the directory that the resources will be copied into.
+     * @param streamed        the map to add each streamed file and its destination to.
+     * @return the resources with the streamed files excluded.
+     */
+    private List<Resource> excludeStreamed(List<Resource> resources, File baseDir, File outputDirectory,
+                                           Map<File, File> streamed) {
+        List<Resource> result = new ArrayList<Resource>(resources.size());
+        for (Resource resource : resources) {
+            File directory = getResourceDirectory(resource, baseDir);
+            if (!resource.isFiltering() || !directory.isDirectory()) {
+                result.add(resource);
+                continue;
+            }
+            String targetPath = ResourceUtils.normalizeTargetPath(resource.getTargetPath());
+            File targetDirectory = targetPath.length() == 0 ? outputDirectory : new File(outputDirectory, targetPath);
+            List<String> excludes = new ArrayList<String>();
+            for (String name : (List<String>) resource.getIncludes()) {
+                File source = new File(directory, name);
+                if (source.isFile() && source.length() >= streamingFilterThreshold && isFiltered(resource, name)) {
+                    excludes.add(name);
+                    streamed.put(source, new File(targetDirectory, name));
+                }
+            }
+            if (excludes.isEmpty()) {
+                result.add(resource);
+            } else {
+                Resource copy = ResourceUtils.copyOf(resource, new ArrayList<String>(resource.getIncludes()));
+                excludes.addAll(resource.getExcludes());
+                copy.setExcludes(excludes);
+                result.add(copy);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indexes the files included by the resources.
+     *
+     * @param resources the resources.
+     * @param baseDir   the directory that relative resource directories are resolved against.
+     * @return the index.
+     */
+    private ResourceIndex buildIndex(List<Resource> resources, File baseDir) {
+        ResourceIndex index = new ResourceIndex();
+        for (Resource resource : resources) {
+            File directory = getResourceDirectory(resource, baseDir);
+            if (!directory.isDirectory()) {
+                continue;
+            }
+            String targetPath = ResourceUtils.normalizeTargetPath(resource.getTargetPath());
+            for (String name : scan(directory, resource).files) {
+                index.add(ResourceUtils.getOutputPath(targetPath, name), resource, name,
+                        new File(directory, name).length(), isReplacing(resource, name));
+            }
+        }
+        return index;
+    }
+
+    private static String getSha1(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform is required to support SHA-1", e);
+        }
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            IOUtil.close(inputStream);
+        }
+        StringBuilder result = new StringBuilder(40);
+        for (byte b : digest.digest()) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Lists the files and directories included by a resource.
+     *
+     * @param directory the resource directory.
+     * @param resource  the resource.
+     * @return the included paths relative to the resource directory.
+     */
+    private Scan scan(File directory, Resource resource) {
+        JvmCache cache = getCache();
+        String key = null;
+        if (cache != null) {
+            try {
+                key = "scan:" + getCanonicalFile(directory) + ":" + resource.getIncludes() + ":"
+                        + resource.getExcludes();
+            } catch (IOException e) {
+                key = "scan:" + directory.getAbsolutePath() + ":" + resource.getIncludes() + ":"
+                        + resource.getExcludes();
+            }
+            Scan result = (Scan) cache.get(key);
+            if (result != null) {
+                return result;
+            }
+        }
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(directory);
+        if (resource.getIncludes() != null && !resource.getIncludes().isEmpty()) {
+            scanner.setIncludes((String[]) resource.getIncludes().toArray(new String[resource.getIncludes().size()]));
+        } else {
+            scanner.setIncludes(new String[]{"**/**"});
+        }
+        if (resource.getExcludes() != null && !resource.getExcludes().isEmpty()) {
+            scanner.setExcludes((String[]) resource.getExcludes().toArray(new String[resource.getExcludes().size()]));
+        }
+        scanner.addDefaultExcludes();
+        scanner.scan();
+        Scan result = new Scan(scanner.getIncludedFiles(), scanner.getIncludedDirectories());
+        if (cache != null) {
+            // a file can only be added to or removed from the result by changing one of the directories scanned
+            List<File> scanned = new ArrayList<File>();
+            scanned.add(directory);
+            for (String[] names : new String[][]{scanner.getIncludedDirectories(),
+                    scanner.getNotIncludedDirectories(), scanner.getExcludedDirectories()}) {
+                for (String name : names) {
+                    if (name.length() > 0) {
+                        scanned.add(new File(directory, name));
+                    }
+                }
+            }
+            long weight = 0L;
+            for (String name : result.files) {
+                weight += JvmCache.weigh(name);
+            }
+            for (String name : result.directories) {
+                weight += JvmCache.weigh(name);
+            }
+            cache.put(key, result, weight, JvmCache.stamp(scanned.toArray(new File[scanned.size()])));
+        }
+        return result;
+    }
+
+    /**
+     * The result of scanning a resource directory.
+     */
+    private static final class Scan {
+        private final String[] files;
+        private final String[] directories;
+
+        private Scan(String[] files, String[] directories) {
+            this.files = files;
+            this.directories = directories;
+        }
+    }
+
+    private static File getResourceDirectory(Resource resource, File baseDir) {
+        File directory = new File(resource.getDirectory());
+        return directory.isAbsolute() ? directory : new File(baseDir, resource.getDirectory());
+    }
+
+    /**
+     * Loads the properties to filter with, in the same order of precedence as maven-filtering.
+     *
+     * @param project the project.
+     * @param filters the filter files.
+     * @return the filter properties.
+     * @throws MavenFilteringException if a filter file could not be read.
+     */
+    private Properties getFilterProperties(MavenProject project, List<String> filters)
+            throws MavenFilteringException {
+        Properties result = new Properties();
+        if (filters != null) {
+            for (String filter : filters) {
+                File file = new File(filter);
+                if (!file.isAbsolute()) {
+                    file = new File(project.getBasedir(), filter);
+                }
+                try {
+                    result.putAll(loadFilterFile(file));
+                } catch (IOException e) {
+                    throw new MavenFilteringException("Error loading property file '" + file + "'", e);
+                }
+            }
+        }
+        result.putAll(project.getProperties());
+        if (session.getExecutionProperties() != null) {
+            result.putAll(session.getExecutionProperties());
+        }
+        return result;
+    }
+
+    /**
+     * Loads a filter file.
+     *
+     * @param file the filter file.
+     * @return the properties, which must not be modified as they may be shared through the JVM cache.
+     * @throws IOException if the file could not be read.
+     */
+    private Properties loadFilterFile(File file) throws IOException {
+        JvmCache cache = getCache();
+        String key = null;
+        if (cache != null) {
+            key = "filter:" + getCanonicalFile(file);
+            Properties result = (Properties) cache.get(key);
+            if (result != null) {
+                return result;
+            }
+        }
+        JvmCache.Stamp stamp = JvmCache.stamp(file);
+        Properties result = new Properties();
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            result.load(inputStream);
+        } finally {
+            IOUtil.close(inputStream);
+        }
+        if (cache != null) {
+            long weight = 0L;
+            for (Map.Entry<Object, Object> entry : result.entrySet()) {
+                weight += JvmCache.weigh(String.valueOf(entry.getKey())) + JvmCache.weigh(
+                        String.valueOf(entry.getValue()));
+            }
+            cache.put(key, result, weight, stamp);
+        }
+        return result;
     }
 
     private boolean isGroupIdArtifactIdMatch(File pomFile) {
         if (pomFile == null || !pomFile.isFile()) {
             return false;
         }
+        String[] coordinates = getGroupIdArtifactId(pomFile);
+        return coordinates.length == 2
+                && StringUtils.equals(coordinates[0], project.getGroupId())
+                && StringUtils.equals(coordinates[1], project.getArtifactId());
+    }
+
+    /**
+     * Reads the groupId and artifactId of a pom.
+     *
+     * @param pomFile the pom.
+     * @return the groupId and artifactId, or an empty array if the pom could not be read.
+     */
+    private String[] getGroupIdArtifactId(File pomFile) {
+        JvmCache cache = getCache();
+        String key = null;
+        if (cache != null) {
+            try {
+                key = "pom:" + getCanonicalFile(pomFile);
+            } catch (IOException e) {
+                key = "pom:" + pomFile.getAbsolutePath();
+            }
+            String[] result = (String[]) cache.get(key);
+            if (result != null) {
+                return result;
+            }
+        }
+        JvmCache.Stamp stamp = JvmCache.stamp(pomFile);
+        String[] result = readGroupIdArtifactId(pomFile);
+        if (cache != null) {
+            cache.put(key, result, result.length == 2 ? JvmCache.weigh(result[0]) + JvmCache.weigh(result[1]) : 0L,
+                    stamp);
+        }
+        return result;
+    }
+
+    private static String[] readGroupIdArtifactId(File pomFile) {
         MavenXpp3Reader xpp3Reader = new MavenXpp3Reader();
         FileReader fileReader = null;
         try {
@@ -363,14 +966,13 @@ public class ResourcesMojo extends AbstractMojo {
                     artifactId = model.getParent().getArtifactId();
                 }
             }
-            return StringUtils.equals(groupId, project.getGroupId())
-                    && StringUtils.equals(artifactId, project.getArtifactId());
+            return new String[]{groupId, artifactId};
         } catch (FileNotFoundException e) {
-            return false;
+            return new String[0];
         } catch (XmlPullParserException e) {
-            return false;
+            return new String[0];
         } catch (IOException e) {
-            return false;
+            return new String[0];
         } finally {
             IOUtil.close(fileReader);
         }
@@ -379,6 +981,7 @@ public class ResourcesMojo extends AbstractMojo {
     protected void executeUserFilterComponents(MavenResourcesExecution mavenResourcesExecution)
             throws MojoExecutionException, MavenFilteringException {
 
+        List<MavenResourcesFiltering> mavenFilteringComponents = new ArrayList<MavenResourcesFiltering>();
         if (mavenFilteringHints != null) {
             for (String hint : mavenFilteringHints) {
                 try {
@@ -393,7 +996,7 @@ public class ResourcesMojo extends AbstractMojo {
             getLog().debug("no use filter components");
         }
 
-        if (mavenFilteringComponents != null && !mavenFilteringComponents.isEmpty()) {
+        if (!mavenFilteringComponents.isEmpty()) {
             getLog().debug("execute user filters");
             for (MavenResourcesFiltering filter : mavenFilteringComponents) {
                 filter.filterResources(mavenResourcesExecution);
@@ -450,6 +1053,14 @@ public class ResourcesMojo extends AbstractMojo {
         this.outputDirectory = outputDirectory;
     }
 
+    public List<OutputDirectory> getOutputDirectories() {
+        return outputDirectories;
+    }
+
+    public void setOutputDirectories(List<OutputDirectory> outputDirectories) {
+        this.outputDirectories = outputDirectories;
+    }
+
     public boolean isOverwrite() {
         return overwrite;
     }
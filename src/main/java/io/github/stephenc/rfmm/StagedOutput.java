@@ -0,0 +1,230 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.stephenc.rfmm;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A private directory that resources are filtered into before being committed to the real output directory. Each
+ * file is moved into place with a rename while holding the lock for its destination path, so concurrent executions
+ * that share an output path (e.g. {@code mvn -T}) never observe or produce a partially written file.
+ * A destination whose content is already identical to the staged file is left untouched, preserving its timestamp
+ * for any incremental build steps that follow.
+ *
+ * @author Stephen Connolly
+ */
+final class StagedOutput {
+
+    /**
+     * Shared by every execution in the JVM as the output paths may be shared between modules.
+     */
+    private static final StripedLocks LOCKS = new StripedLocks(64);
+
+    private final File directory;
+
+    private StagedOutput(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a new staging directory in the build directory. This keeps anything left behind by a build that dies
+     * before {@link #dispose(Log)} out of the output directories, which may be packaged or on the classpath, while
+     * normally being on the same file system as them so that the final rename does not have to copy.
+     *
+     * @param buildDirectory the build directory of the project.
+     * @return the staged output.
+     * @throws IOException if the staging directory could not be created.
+     */
+    static StagedOutput create(File buildDirectory) throws IOException {
+        ResourceUtils.mkdirs(buildDirectory);
+        File directory = File.createTempFile("rfmm-", ".rfmm", buildDirectory);
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Could not create staging directory " + directory);
+        }
+        return new StagedOutput(directory);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Moves everything that has been staged into each of the output directories. The staged files are read once
+     * and are moved into the last output directory, the others receive a copy.
+     *
+     * @param outputDirectories the output directories.
+     * @param unfilteredSources the source of each staged file that was copied without filtering, keyed by its path
+     *                          within the output directory, such files are not committed over a newer destination.
+     * @param log               the log.
+     * @return the number of files written.
+     * @throws IOException if a file could not be committed.
+     */
+    int commit(List<File> outputDirectories, Map<String, File> unfilteredSources, Log log) throws IOException {
+        File[] targetDirs = outputDirectories.toArray(new File[outputDirectories.size()]);
+        for (File outputDirectory : targetDirs) {
+            ResourceUtils.mkdirs(outputDirectory);
+        }
+        return commit(directory, targetDirs, "", unfilteredSources, log);
+    }
+
+    private int commit(File stagedDir, File[] targetDirs, String prefix, Map<String, File> unfilteredSources,
+                       Log log) throws IOException {
+        File[] children = stagedDir.listFiles();
+        if (children == null) {
+            throw new IOException("Could not list " + stagedDir);
+        }
+        int count = 0;
+        for (File child : children) {
+            String path = prefix + child.getName();
+            File[] targets = new File[targetDirs.length];
+            for (int i = 0; i < targetDirs.length; i++) {
+                targets[i] = new File(targetDirs[i], child.getName());
+            }
+            if (child.isDirectory()) {
+                for (File target : targets) {
+                    ResourceUtils.mkdirs(target);
+                }
+                count += commit(child, targets, path + "/", unfilteredSources, log);
+            } else {
+                File source = unfilteredSources.get(path);
+                for (int i = 0; i < targets.length; i++) {
+                    if (commitFile(child, targets[i], source, i == targets.length - 1, log)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean commitFile(File staged, File target, File source, boolean move, Log log)
+            throws IOException {
+        Lock lock = LOCKS.get(target);
+        lock.lock();
+        try {
+            if (source != null && target.isFile() && target.lastModified() >= source.lastModified()) {
+                log.debug("Not overwriting " + target + " as it is newer than " + source);
+                return false;
+            }
+            if (contentEquals(staged, target)) {
+                log.debug("Not overwriting " + target + " as it is unchanged");
+                return false;
+            }
+            replace(staged, target, move);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compares the content of the staged file with the target, so that an unchanged target keeps its timestamp.
+     *
+     * @param staged the staged file.
+     * @param target the target file.
+     * @return {@code true} if the target exists and has the same content as the staged file.
+     * @throws IOException if either file could not be read.
+     */
+    private static boolean contentEquals(File staged, File target) throws IOException {
+        if (!target.isFile() || target.length() != staged.length()) {
+            return false;
+        }
+        InputStream a = null;
+        InputStream b = null;
+        try {
+            a = new FileInputStream(staged);
+            b = new FileInputStream(target);
+            byte[] bufferA = new byte[8192];
+            byte[] bufferB = new byte[8192];
+            while (true) {
+                int count = a.read(bufferA);
+                if (count == -1) {
+                    return b.read() == -1;
+                }
+                int offset = 0;
+                while (offset < count) {
+                    int read = b.read(bufferB, offset, count - offset);
+                    if (read == -1) {
+                        return false;
+                    }
+                    offset += read;
+                }
+                for (int i = 0; i < count; i++) {
+                    if (bufferA[i] != bufferB[i]) {
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            IOUtil.close(a);
+            IOUtil.close(b);
+        }
+    }
+
+    /**
+     * Atomically replaces the target with the staged file where the platform allows.
+     *
+     * @param staged the staged file.
+     * @param target the target file.
+     * @param move   {@code true} if the staged file is no longer needed and can be moved rather than copied.
+     * @throws IOException if the target could not be replaced.
+     */
+    private static void replace(File staged, File target, boolean move) throws IOException {
+        if (move && staged.renameTo(target)) {
+            return;
+        }
+        // a copy, a different file system, or a platform that will not rename over an existing file
+        File temp = File.createTempFile("." + target.getName() + "-", ".rfmm", target.getParentFile());
+        try {
+            FileUtils.copyFile(staged, temp);
+            if (temp.renameTo(target)) {
+                return;
+            }
+            if (target.delete() && temp.renameTo(target)) {
+                return;
+            }
+            throw new IOException("Could not replace " + target);
+        } finally {
+            if (temp.exists()) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Removes the staging directory and anything left in it.
+     *
+     * @param log the log.
+     */
+    void dispose(Log log) {
+        try {
+            FileUtils.deleteDirectory(directory);
+        } catch (IOException e) {
+            log.debug("Could not remove staging directory " + directory, e);
+        }
+    }
+}
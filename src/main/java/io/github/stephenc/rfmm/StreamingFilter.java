@@ -0,0 +1,316 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.stephenc.rfmm;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.shared.filtering.FilteringUtils;
+import org.codehaus.plexus.interpolation.InterpolationException;
+import org.codehaus.plexus.interpolation.PrefixedObjectValueSource;
+import org.codehaus.plexus.interpolation.PropertiesBasedValueSource;
+import org.codehaus.plexus.interpolation.SimpleRecursionInterceptor;
+import org.codehaus.plexus.interpolation.SingleResponseValueSource;
+import org.codehaus.plexus.interpolation.StringSearchInterpolator;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Filters a file with a fixed lookahead window for the end of each expression, so that the memory needed does not
+ * depend on the size of the file. An expression that is not closed within the window is copied through verbatim.
+ *
+ * @author Stephen Connolly
+ */
+final class StreamingFilter {
+
+    private final StringSearchInterpolator interpolator;
+
+    /**
+     * The begin and end token of each delimiter.
+     */
+    private final List<String[]> delimiters;
+
+    /**
+     * The first character of every token that can start a match, used to skip ordinary characters quickly.
+     */
+    private final String triggers;
+
+    private final String escapeString;
+
+    private final boolean supportMultiLineFiltering;
+
+    private final boolean escapeWindowsPaths;
+
+    private final int lookahead;
+
+    private final int pushback;
+
+    private final Log log;
+
+    /**
+     * Creates a streaming filter.
+     *
+     * @param filterProperties          the properties to filter with.
+     * @param project                   the project to resolve {@code project.*} expressions against.
+     * @param session                   the session to resolve {@code session.*}, {@code settings.*} and
+     *                                  {@code localRepository} expressions against.
+     * @param delimiters                the delimiters in the form {@code beginToken*endToken}.
+     * @param escapeString              the string that escapes a begin token, may be {@code null}.
+     * @param supportMultiLineFiltering {@code true} to continue searching for the end token past the end of line.
+     * @param escapeWindowsPaths        {@code true} to escape windows-style paths in values as maven-filtering does.
+     * @param lookahead                 the maximum number of characters to search for the end token.
+     * @param log                       the log.
+     */
+    StreamingFilter(Properties filterProperties, MavenProject project, MavenSession session,
+                    Collection<String> delimiters,
+                    String escapeString, boolean supportMultiLineFiltering, boolean escapeWindowsPaths,
+                    int lookahead, Log log) {
+        this.interpolator = new StringSearchInterpolator("${", "}");
+        this.interpolator.addValueSource(new PropertiesBasedValueSource(filterProperties));
+        this.interpolator.addValueSource(
+                new PrefixedObjectValueSource(Arrays.asList("project.", "pom."), project, true));
+        // the same value sources that maven-filtering registers for the session
+        if (session != null) {
+            this.interpolator.addValueSource(new PrefixedObjectValueSource("session.", session));
+            Settings settings = session.getSettings();
+            if (settings != null) {
+                this.interpolator.addValueSource(new PrefixedObjectValueSource("settings.", settings));
+                this.interpolator.addValueSource(
+                        new SingleResponseValueSource("localRepository", settings.getLocalRepository()));
+            }
+        }
+        this.delimiters = new ArrayList<String[]>(delimiters.size());
+        StringBuilder triggers = new StringBuilder();
+        int longest = 0;
+        for (String delimiter : delimiters) {
+            int index = delimiter.indexOf('*');
+            String[] tokens = index == -1
+                    ? new String[]{delimiter, delimiter}
+                    : new String[]{delimiter.substring(0, index), delimiter.substring(index + 1)};
+            if (tokens[0].length() == 0 || tokens[1].length() == 0) {
+                continue;
+            }
+            this.delimiters.add(tokens);
+            triggers.append(tokens[0].charAt(0));
+            longest = Math.max(longest, Math.max(tokens[0].length(), tokens[1].length()));
+        }
+        if (StringUtils.isNotEmpty(escapeString)) {
+            triggers.append(escapeString.charAt(0));
+            this.escapeString = escapeString;
+        } else {
+            this.escapeString = null;
+        }
+        this.triggers = triggers.toString();
+        this.supportMultiLineFiltering = supportMultiLineFiltering;
+        this.escapeWindowsPaths = escapeWindowsPaths;
+        this.lookahead = Math.max(1, lookahead);
+        this.pushback = this.lookahead + longest + 1;
+        this.log = log;
+    }
+
+    /**
+     * Filters a file.
+     *
+     * @param from     the file to filter.
+     * @param to       the file to write.
+     * @param encoding the encoding of both files, {@code null} for the platform encoding.
+     * @throws IOException if the file could not be filtered.
+     */
+    void filter(File from, File to, String encoding) throws IOException {
+        Charset charset = StringUtils.isEmpty(encoding) ? Charset.defaultCharset() : Charset.forName(encoding);
+        ResourceUtils.mkdirs(to.getParentFile());
+        PushbackReader in = null;
+        Writer out = null;
+        try {
+            in = new PushbackReader(new MappedFileReader(from, charset), pushback);
+            out = new BufferedWriter(
+                    new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(to)), charset));
+            Cursor cursor = new Cursor();
+            StringBuilder buffer = new StringBuilder();
+            while (true) {
+                int c = in.read();
+                if (c == -1) {
+                    break;
+                }
+                if (triggers.indexOf(c) == -1) {
+                    cursor.advance((char) c);
+                    out.write(c);
+                    continue;
+                }
+                in.unread(c);
+                if (escapeString != null && lookingAt(in, escapeString)) {
+                    String[] escaped = beginAt(in);
+                    out.write(escaped == null ? escapeString : escaped[0]);
+                    continue;
+                }
+                String[] delimiter = beginAt(in);
+                if (delimiter == null) {
+                    c = in.read();
+                    cursor.advance((char) c);
+                    out.write(c);
+                } else {
+                    expression(in, out, delimiter, buffer, cursor);
+                }
+            }
+            out.close();
+            out = null;
+            if (cursor.unterminated > 0) {
+                log.warn("Copied " + cursor.unterminated + " expression(s) verbatim in " + from
+                        + " as the end token was not found within " + lookahead + " characters (first at line "
+                        + cursor.firstUnterminatedLine + ")");
+            }
+        } finally {
+            IOUtil.close(out);
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Handles everything after a begin token.
+     */
+    private void expression(PushbackReader in, Writer out, String[] delimiter, StringBuilder buffer, Cursor cursor)
+            throws IOException {
+        buffer.setLength(0);
+        while (true) {
+            if (lookingAt(in, delimiter[1])) {
+                String value = resolve(buffer.toString());
+                if (value == null) {
+                    out.write(delimiter[0]);
+                    out.write(buffer.toString());
+                    out.write(delimiter[1]);
+                } else {
+                    out.write(value);
+                }
+                for (int i = 0; i < buffer.length(); i++) {
+                    cursor.advance(buffer.charAt(i));
+                }
+                return;
+            }
+            if (buffer.length() == lookahead) {
+                // only running out of window is worth reporting, the end of the line or file just means no expression
+                cursor.unterminated();
+                break;
+            }
+            int c = in.read();
+            if (c == -1) {
+                break;
+            }
+            if (!supportMultiLineFiltering && (c == '\n' || c == '\r')) {
+                in.unread(c);
+                break;
+            }
+            buffer.append((char) c);
+        }
+        // not an expression, emit the begin token and rescan what followed it
+        out.write(delimiter[0]);
+        in.unread(buffer.toString().toCharArray());
+    }
+
+    private String resolve(String expression) {
+        if (expression.length() == 0) {
+            return null;
+        }
+        String value;
+        try {
+            value = interpolator.interpolate("${" + expression + "}", new SimpleRecursionInterceptor());
+        } catch (InterpolationException e) {
+            log.debug("Could not resolve " + expression, e);
+            return null;
+        }
+        if (value == null || value.equals("${" + expression + "}")) {
+            return null;
+        }
+        // exactly as maven-filtering post-processes values, so a file filters the same on either side of the threshold
+        return escapeWindowsPaths ? FilteringUtils.escapeWindowsPath(value) : value;
+    }
+
+    /**
+     * Consumes the begin token of a delimiter if one is next.
+     *
+     * @return the delimiter or {@code null} if none is next.
+     */
+    private String[] beginAt(PushbackReader in) throws IOException {
+        for (String[] delimiter : delimiters) {
+            if (lookingAt(in, delimiter[0])) {
+                return delimiter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Consumes the token if it is next, otherwise leaves the reader unchanged.
+     *
+     * @return {@code true} if the token was consumed.
+     */
+    private static boolean lookingAt(PushbackReader in, String token) throws IOException {
+        char[] read = new char[token.length()];
+        int count = 0;
+        while (count < read.length) {
+            int c = in.read();
+            if (c == -1) {
+                break;
+            }
+            read[count++] = (char) c;
+            if (c != token.charAt(count - 1)) {
+                break;
+            }
+        }
+        if (count == read.length && read[count - 1] == token.charAt(count - 1)) {
+            return true;
+        }
+        in.unread(read, 0, count);
+        return false;
+    }
+
+    /**
+     * Tracks the position in the source for reporting.
+     */
+    private static final class Cursor {
+        private long line = 1;
+        private int unterminated;
+        private long firstUnterminatedLine;
+
+        void advance(char c) {
+            if (c == '\n') {
+                line++;
+            }
+        }
+
+        void unterminated() {
+            if (unterminated++ == 0) {
+                firstUnterminatedLine = line;
+            }
+        }
+    }
+}
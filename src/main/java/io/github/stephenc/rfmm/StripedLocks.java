@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Stephen Connolly.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.stephenc.rfmm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks indexed by canonical path, so that writers of the same output path are serialized without
+ * having to keep one lock object per path alive for the lifetime of the JVM.
+ *
+ * @author Stephen Connolly
+ */
+final class StripedLocks {
+
+    private final Lock[] stripes;
+
+    private final int mask;
+
+    /**
+     * Creates a set of locks.
+     *
+     * @param concurrency the minimum number of stripes, will be rounded up to a power of two.
+     */
+    StripedLocks(int concurrency) {
+        int size = 1;
+        while (size < concurrency) {
+            size <<= 1;
+        }
+        stripes = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the lock guarding the supplied path. Two files that resolve to the same canonical path will always
+     * get the same lock.
+     *
+     * @param file the path.
+     * @return the lock for that path.
+     */
+    Lock get(File file) {
+        String key;
+        try {
+            key = file.getCanonicalPath();
+        } catch (IOException e) {
+            key = file.getAbsolutePath();
+        }
+        int h = key.hashCode();
+        // spread the higher bits down as the mask only keeps the low bits
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return stripes[h & mask];
+    }
+}